@@ -0,0 +1,210 @@
+package com.berttowne.inlineheads.loadtest;
+
+import com.berttowne.inlineheads.InlineHeadsService;
+import com.berttowne.inlineheads.head.HeadProfile;
+import com.berttowne.inlineheads.head.HeadSettings;
+import com.google.common.cache.CacheStats;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.kyori.adventure.text.minimessage.tag.Tag;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Floods {@link InlineHeadsService} with chat messages containing {@code <player_head:...>} placeholders, resolved
+ * through MiniMessage from many threads, against a local {@link SkinStub} instead of minotar.net.
+ * <p>
+ * Options are passed as {@code name=value} arguments, for example:
+ * <pre>mvn exec:java -Dexec.args="players=500 rate=2000 duration=60 latency=80 errors=0.02"</pre>
+ *
+ * <ul>
+ *     <li>{@code players}: the number of different players sending messages (default 500)</li>
+ *     <li>{@code rate}: the number of messages per second, across all players (default 1000)</li>
+ *     <li>{@code duration}: how long to send messages for, in seconds (default 30)</li>
+ *     <li>{@code threads}: the number of threads resolving messages (default 16)</li>
+ *     <li>{@code latency}: the delay of every skin request, in milliseconds (default 50)</li>
+ *     <li>{@code jitter}: the maximum random delay added to every skin request, in milliseconds (default 25)</li>
+ *     <li>{@code errors}: the fraction of skin requests that fail, from 0 to 1 (default 0.01)</li>
+ *     <li>{@code profile}: the profile heads are rendered with (default FULL)</li>
+ *     <li>{@code expiry}: how long heads stay cached after they were last used, in minutes (default 10)</li>
+ * </ul>
+ */
+public final class LoadTest {
+
+    private static final long TICK_MILLIS = 10;
+
+    private LoadTest() {
+        throw new UnsupportedOperationException("This class cannot be instantiated");
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Options options = Options.parse(args);
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        System.out.println("Running with " + options);
+        reportRenderAllocation(threads);
+
+        try (SkinStub stub = new SkinStub(options.latency(), options.jitter(), options.errorRate())) {
+            final InlineHeadsService service = new InlineHeadsService();
+            service.configure(new HeadSettings(stub.getSkinUrl(), Duration.ofMinutes(options.expiry()), 0));
+
+            // Mirrors the player_head placeholder registered with MiniPlaceholders
+            final TagResolver resolver = TagResolver.resolver("player_head", (queue, context) -> {
+                String skullOwner = queue.popOr("player name expected").value();
+
+                try {
+                    return Tag.inserting(service.getHead(skullOwner, options.profile()));
+                } catch (ExecutionException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+
+            final MiniMessage miniMessage = MiniMessage.miniMessage();
+            final ExecutorService workers = Executors.newFixedThreadPool(options.threads());
+            final ScheduledExecutorService dispatcher = Executors.newSingleThreadScheduledExecutor();
+
+            final long expectedMessages = (long) options.rate() * options.duration();
+            final long[] latencies = new long[(int) Math.min(Integer.MAX_VALUE - 8, expectedMessages + expectedMessages / 10 + 1024)];
+            final AtomicInteger recorded = new AtomicInteger();
+            final LongAdder failed = new LongAdder();
+
+            final double messagesPerTick = options.rate() * TICK_MILLIS / 1000.0;
+            final double[] owed = {0};
+
+            threads.resetPeakThreadCount();
+            final long allocatedBefore = threads.getTotalThreadAllocatedBytes();
+            final long startedAt = System.nanoTime();
+
+            dispatcher.scheduleAtFixedRate(() -> {
+                owed[0] += messagesPerTick;
+
+                for (; owed[0] >= 1; owed[0]--) {
+                    final long submittedAt = System.nanoTime();
+                    final String sender = "Player" + ThreadLocalRandom.current().nextInt(options.players());
+
+                    workers.execute(() -> {
+                        try {
+                            miniMessage.deserialize("<player_head:" + sender + "> <gray>" + sender + "</gray>: hello everyone!", resolver);
+                        } catch (Exception e) {
+                            // Failed messages return as soon as the skin fetch fails, so they're kept out of the percentiles
+                            failed.increment();
+                            return;
+                        }
+
+                        int index = recorded.getAndIncrement();
+                        if (index < latencies.length) latencies[index] = System.nanoTime() - submittedAt;
+                    });
+                }
+            }, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+
+            Thread.sleep(TimeUnit.SECONDS.toMillis(options.duration()));
+            dispatcher.shutdown();
+            dispatcher.awaitTermination(1, TimeUnit.SECONDS);
+
+            final int peakThreads = threads.getPeakThreadCount();
+
+            workers.shutdown();
+            if (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+                System.out.println("Gave up waiting for queued messages after 1 minute");
+                workers.shutdownNow();
+            }
+
+            final double elapsedSeconds = (System.nanoTime() - startedAt) / 1e9;
+            final long allocated = threads.getTotalThreadAllocatedBytes() - allocatedBefore;
+            final int succeeded = Math.min(recorded.get(), latencies.length);
+            final long messages = succeeded + failed.sum();
+            final long[] sorted = Arrays.copyOf(latencies, succeeded);
+            Arrays.sort(sorted);
+
+            System.out.println();
+            System.out.printf(Locale.ROOT, "Messages:          %d in %.1fs (%.0f/s), %d failed%n", messages, elapsedSeconds, messages / elapsedSeconds, failed.sum());
+            System.out.printf(Locale.ROOT, "Latency:           p50 %.2fms, p99 %.2fms, max %.2fms (successful messages)%n", percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 1.0));
+            System.out.printf(Locale.ROOT, "Skin cache:        %s%n", describe(service.getSkinCacheStats()));
+            System.out.printf(Locale.ROOT, "Head cache:        %s%n", describe(service.getHeadCacheStats()));
+            System.out.printf(Locale.ROOT, "Skin requests:     %d, %d failed%n", stub.getRequests(), stub.getErrors());
+            System.out.printf(Locale.ROOT, "Threads:           %d peak, %d live%n", peakThreads, threads.getThreadCount());
+            System.out.printf(Locale.ROOT, "Allocation:        %.1f MB/s, %.1f KB/message%n", allocated / elapsedSeconds / 1024 / 1024, messages == 0 ? 0 : allocated / 1024.0 / messages);
+        }
+    }
+
+    /**
+     * Report how much a single head render allocates for each profile, on the current thread.
+     */
+    private static void reportRenderAllocation(@NotNull com.sun.management.ThreadMXBean threads) {
+        final int[] pixels = new int[64];
+        final int iterations = 10_000;
+
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = ThreadLocalRandom.current().nextInt(0xFFFFFF);
+        }
+
+        for (HeadProfile profile : HeadProfile.values()) {
+            for (int i = 0; i < iterations; i++) profile.render(pixels); // Warm up
+
+            long before = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < iterations; i++) profile.render(pixels);
+            long after = threads.getCurrentThreadAllocatedBytes();
+
+            System.out.printf(Locale.ROOT, "Render %-8s %d bytes/head%n", profile + ":", (after - before) / iterations);
+        }
+    }
+
+    private static double percentile(long @NotNull [] sorted, double percentile) {
+        if (sorted.length == 0) return 0;
+
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+
+    @NotNull
+    private static String describe(@NotNull CacheStats stats) {
+        return String.format(Locale.ROOT, "%.1f%% hit rate (%d hits, %d misses), %d loads failed, %.2fms average load",
+                stats.hitRate() * 100, stats.hitCount(), stats.missCount(), stats.loadExceptionCount(), stats.averageLoadPenalty() / 1e6);
+    }
+
+    private record Options(int players, int rate, int duration, int threads, long latency, long jitter, double errorRate,
+                           @NotNull HeadProfile profile, long expiry) {
+
+        @NotNull
+        private static Options parse(String @NotNull [] args) {
+            final Map<String, String> values = new HashMap<>();
+
+            for (String arg : args) {
+                int separator = arg.indexOf('=');
+
+                if (separator < 0) {
+                    throw new IllegalArgumentException("Expected name=value, got " + arg);
+                }
+
+                values.put(arg.substring(0, separator).toLowerCase(Locale.ROOT), arg.substring(separator + 1));
+            }
+
+            return new Options(
+                    Integer.parseInt(values.getOrDefault("players", "500")),
+                    Integer.parseInt(values.getOrDefault("rate", "1000")),
+                    Integer.parseInt(values.getOrDefault("duration", "30")),
+                    Integer.parseInt(values.getOrDefault("threads", "16")),
+                    Long.parseLong(values.getOrDefault("latency", "50")),
+                    Long.parseLong(values.getOrDefault("jitter", "25")),
+                    Double.parseDouble(values.getOrDefault("errors", "0.01")),
+                    HeadProfile.valueOf(values.getOrDefault("profile", "FULL").toUpperCase(Locale.ROOT)),
+                    Long.parseLong(values.getOrDefault("expiry", "10")));
+        }
+
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.berttowne.inlineheads.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.NotNull;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-process stand-in for minotar.net, serving a made-up 8x8 skin for every name with injectable latency and errors.
+ */
+public class SkinStub implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, byte[]> skins = new ConcurrentHashMap<>();
+
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double errorRate;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * Start the stub on a random local port.
+     *
+     * @param latencyMillis The delay before every response.
+     * @param jitterMillis  The maximum random delay added on top of the latency.
+     * @param errorRate     The fraction of requests (from 0 to 1) that fail with a 500 error.
+     * @throws IOException If the server could not be started.
+     */
+    public SkinStub(long latencyMillis, long jitterMillis, double errorRate) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.errorRate = errorRate;
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext("/avatar/", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    /**
+     * Get the skin URL to configure InlineHeads with.
+     *
+     * @return The skin URL, with {@code %s} in place of the player's name.
+     */
+    @NotNull
+    public String getSkinUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/avatar/%s/8.png";
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    private void handle(@NotNull HttpExchange exchange) throws IOException {
+        requests.increment();
+
+        try (exchange) {
+            long delay = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+
+            if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+                errors.increment();
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+
+            // Path is /avatar/<name>/8.png
+            String name = exchange.getRequestURI().getPath().split("/")[2];
+            byte[] skin = skins.computeIfAbsent(name, SkinStub::createSkin);
+
+            exchange.getResponseHeaders().set("Content-Type", "image/png");
+            exchange.sendResponseHeaders(200, skin.length);
+
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(skin);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @NotNull
+    private static byte[] createSkin(@NotNull String name) {
+        final BufferedImage image = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+        final int seed = name.hashCode();
+
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                image.setRGB(x, y, (seed * 31 + y * 8 + x) * 0x9E3779B9 & 0xFFFFFF);
+            }
+        }
+
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+}
@@ -1,11 +1,20 @@
 package com.berttowne.inlineheads;
 
+import com.berttowne.inlineheads.command.InlineHeadsCommand;
 import com.berttowne.inlineheads.injection.*;
+import io.papermc.paper.plugin.lifecycle.event.types.LifecycleEvents;
 import org.bukkit.event.Listener;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.jetbrains.annotations.NotNull;
 
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+@SuppressWarnings("UnstableApiUsage")
 public final class InlineHeadsPlugin extends JavaPlugin implements InjectionRoot {
 
+    private boolean reloading = false;
+
     @Override
     public void onLoad() {
         AppInjector.registerInjectionRoot(this);
@@ -22,6 +31,9 @@ public final class InlineHeadsPlugin extends JavaPlugin implements InjectionRoot
         GuiceServiceLoader.load(Service.class, getClassLoader()).forEach(Service::onLoad);
         GuiceServiceLoader.load(Listener.class, getClassLoader()).forEach(listener -> getServer().getPluginManager().registerEvents(listener, this));
         GuiceServiceLoader.load(Service.class, getClassLoader()).forEach(Service::onEnable);
+
+        getLifecycleManager().registerEventHandler(LifecycleEvents.COMMANDS, event ->
+                event.registrar().register(InlineHeadsCommand.create(this), "Manage InlineHeads"));
     }
 
     @Override
@@ -29,4 +41,56 @@ public final class InlineHeadsPlugin extends JavaPlugin implements InjectionRoot
         GuiceServiceLoader.load(Service.class, getClassLoader()).forEach(Service::onDisable);
     }
 
+    /**
+     * Reload the config and restart every service, without restarting the server.
+     * Services are singletons, so anything they choose to keep (such as cached heads) survives the reload.
+     * <p>
+     * A service that fails to restart is logged and skipped, so it doesn't keep the others down.
+     *
+     * @return {@code true} if every service restarted, {@code false} if any of them failed.
+     */
+    public boolean reload() {
+        this.reloadConfig();
+
+        GuiceServiceLoader<Service> services = GuiceServiceLoader.load(Service.class, getClassLoader());
+        boolean success = true;
+
+        this.reloading = true;
+
+        try {
+            success &= forEachService(services, "disable", Service::onDisable);
+            services.reload();
+            success &= forEachService(services, "load", Service::onLoad);
+            success &= forEachService(services, "enable", Service::onEnable);
+        } finally {
+            this.reloading = false;
+        }
+
+        return success;
+    }
+
+    /**
+     * Check whether the services are being restarted by {@link #reload()}, rather than the plugin being disabled.
+     *
+     * @return {@code true} while a reload is in progress.
+     */
+    public boolean isReloading() {
+        return reloading;
+    }
+
+    private boolean forEachService(@NotNull Iterable<Service> services, @NotNull String action, @NotNull Consumer<Service> consumer) {
+        boolean success = true;
+
+        for (Service service : services) {
+            try {
+                consumer.accept(service);
+            } catch (Exception e) {
+                getLogger().log(Level.SEVERE, "Unable to " + action + " " + service.getClass().getSimpleName() + " while reloading", e);
+                success = false;
+            }
+        }
+
+        return success;
+    }
+
 }
\ No newline at end of file
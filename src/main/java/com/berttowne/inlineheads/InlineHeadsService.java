@@ -1,74 +1,151 @@
 package com.berttowne.inlineheads;
 
+import com.berttowne.inlineheads.head.HeadProfile;
+import com.berttowne.inlineheads.head.HeadSettings;
+import com.berttowne.inlineheads.head.HeadSnapshot;
+import com.berttowne.inlineheads.head.HeadSubscription;
+import com.berttowne.inlineheads.head.HeadTemplate;
 import com.berttowne.inlineheads.injection.Service;
+import com.berttowne.inlineheads.resourcepack.ResourcePackService;
 import com.google.auto.service.AutoService;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import io.github.miniplaceholders.api.Expansion;
-import net.kyori.adventure.key.Key;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import net.kyori.adventure.audience.Audience;
 import net.kyori.adventure.text.Component;
-import net.kyori.adventure.text.TextComponent;
-import net.kyori.adventure.text.format.TextColor;
 import net.kyori.adventure.text.minimessage.tag.Tag;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
 import java.net.URI;
-import java.time.Duration;
-import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 
 @Singleton
 @SuppressWarnings("unused")
 @AutoService({Service.class, Listener.class})
 public class InlineHeadsService implements Service, Listener {
 
+    private static final int FETCH_THREADS = 4;
+    private static final String SNAPSHOT_FILE = "heads.dat";
+
     /**
-     * A cache of player heads from minotar.net, with a 10 minute expiry to avoid spamming the service.
+     * When each cached skin was last used to get a head, to know which skins to keep in the snapshot.
      */
-    private final LoadingCache<String, Component> headCache = CacheBuilder.newBuilder()
-            .expireAfterAccess(Duration.of(10, ChronoUnit.MINUTES))
-            .build(new CacheLoader<>() {
+    private final Map<String, AtomicLong> lastUsed = new ConcurrentHashMap<>();
+
+    private final RemovalListener<String, int[]> skinRemovalListener = notification -> {
+        if (notification.getCause() != RemovalCause.REPLACED) lastUsed.remove(notification.getKey());
+    };
+
+    /**
+     * Fetches player skins from minotar.net, or the {@code skin-url} set in the config.
+     */
+    private final CacheLoader<String, int[]> skinLoader = new CacheLoader<>() {
         @NotNull
         @Override
-        public Component load(@NotNull String skullOwner) throws Exception {
-            final URI uri = new URI("https://minotar.net/avatar/" + skullOwner + "/8.png");
+        public int[] load(@NotNull String skullOwner) throws Exception {
+            final URI uri = new URI(settings.skinUrl().formatted(skullOwner));
             final BufferedImage image = ImageIO.read(uri.toURL());
-            final TextComponent.Builder component = Component.text("").toBuilder();
-
-            for (int i = 1; i <= 64; i++) {
-                int row = i == 64 ? 0 : 7 - (i / 8);
-                int col = i == 64 ? 7 : (i - 1) % 8;
 
-                if (col == 7 && i < 64) row++;
+            if (image == null) {
+                throw new IOException("No image found at " + uri);
+            }
 
-                component.append(Component.translatable("pixel.eighth-" + i).font(Key.key("pixelized", "pixelized")).color(TextColor.color(image.getRGB(col, row))));
-                component.append(Component.translatable("space.-" + ((i % 8) + 1)));
+            final int[] pixels = image.getRGB(0, 0, HeadTemplate.SIZE, HeadTemplate.SIZE, null, 0, HeadTemplate.SIZE);
 
-                if (i >= 8 && i % 8 == 0 && i != 64) {
-                    component.append(Component.translatable("space.-8"));
-                }
+            // Drop the alpha channel, so skins compare equal however they were loaded (see HeadSnapshot)
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] &= 0xFFFFFF;
             }
 
-            return component.build();
+            return pixels;
+        }
+    };
+
+    /**
+     * Renders cached skins with the requested profile.
+     */
+    private final CacheLoader<HeadKey, Component> headLoader = new CacheLoader<>() {
+        @NotNull
+        @Override
+        public Component load(@NotNull HeadKey key) throws Exception {
+            return key.profile().render(skinCache.get(key.skullOwner()));
         }
-    });
+    };
+
+    /**
+     * A cache of player skins from minotar.net, with a configurable expiry (10 minutes by default) to avoid spamming
+     * the service. Rebuilt with the current config on every load, keeping the skins already cached.
+     */
+    private volatile LoadingCache<String, int[]> skinCache = newCacheBuilder(HeadSettings.DEFAULT).removalListener(skinRemovalListener).build(skinLoader);
+
+    /**
+     * A cache of rendered heads, one per player and profile, so messages sent to many players only render each
+     * variant once.
+     */
+    private volatile LoadingCache<HeadKey, Component> headCache = newCacheBuilder(HeadSettings.DEFAULT).build(headLoader);
+
+    private volatile HeadSettings settings = HeadSettings.DEFAULT;
+    private volatile HeadProfile defaultProfile = HeadProfile.FULL;
+
+    private final Map<UUID, HeadProfile> preferences = new ConcurrentHashMap<>();
+    private final Map<String, List<Subscriber>> subscriptions = new ConcurrentHashMap<>();
 
     @Inject private InlineHeadsPlugin plugin;
+    @Inject private ResourcePackService resourcePackService;
+
+    private Expansion expansion;
+    private volatile ExecutorService fetchExecutor;
+    private ScheduledTask refreshTask;
 
     @Override
     public void onLoad() {
+        this.configure(HeadSettings.fromConfig(plugin.getConfig(), plugin.getLogger()));
+        this.defaultProfile = readDefaultProfile();
+        this.fetchExecutor = Executors.newFixedThreadPool(FETCH_THREADS, Thread.ofPlatform().daemon().name("InlineHeads Fetcher #", 1).factory());
+
+        // Only restore on a fresh start, as reloading keeps the cache
+        if (plugin.getConfig().getInt("cache.snapshot-size", 500) > 0 && skinCache.size() == 0) {
+            fetchExecutor.execute(this::restoreSnapshot);
+        }
+
         if (!plugin.getServer().getPluginManager().isPluginEnabled("MiniPlaceholders")) {
             plugin.getLogger().warning("MiniPlaceholders is not installed! InlineHeads will only serve as a developer API.");
             return;
         }
 
-        Expansion.builder("player")
+        this.expansion = Expansion.builder("player")
                 .globalPlaceholder("head", (args, context) -> {
                     String skullOwner = args.popOr("player name expected").value();
 
@@ -77,7 +154,73 @@ public class InlineHeadsService implements Service, Listener {
                     } catch (ExecutionException e) {
                         throw new RuntimeException(e);
                     }
-                }).build().register();
+                })
+                .audiencePlaceholder("adaptive_head", (audience, args, context) -> {
+                    String skullOwner = args.popOr("player name expected").value();
+
+                    try {
+                        return Tag.inserting(getHead(skullOwner, audience));
+                    } catch (ExecutionException e) {
+                        throw new RuntimeException(e);
+                    }
+                }).build();
+
+        this.expansion.register();
+    }
+
+    @Override
+    public void onEnable() {
+        long interval = plugin.getConfig().getLong("subscriptions.refresh-interval", 5);
+
+        if (interval > 0) {
+            this.refreshTask = plugin.getServer().getAsyncScheduler().runAtFixedRate(plugin,
+                    task -> subscriptions.keySet().forEach(skullOwner -> this.update(skullOwner, true)),
+                    interval, interval, TimeUnit.MINUTES);
+        }
+    }
+
+    @Override
+    public void onDisable() {
+        if (expansion != null) {
+            expansion.unregister();
+            expansion = null;
+        }
+
+        if (refreshTask != null) {
+            refreshTask.cancel();
+            refreshTask = null;
+        }
+
+        // Reloading keeps the cache in memory, so there is no need to block the server to drain or save it
+        if (plugin.isReloading()) {
+            if (fetchExecutor != null) fetchExecutor.shutdown();
+            return;
+        }
+
+        if (fetchExecutor != null) {
+            this.drainFetches(plugin.getConfig().getLong("shutdown-timeout", 5));
+        }
+
+        int snapshotSize = plugin.getConfig().getInt("cache.snapshot-size", 500);
+
+        if (snapshotSize > 0) {
+            this.saveSnapshot(snapshotSize);
+        }
+    }
+
+    @EventHandler
+    public void onPlayerJoin(@NotNull PlayerJoinEvent event) {
+        // Skin changes only take effect when a player rejoins, so this is the best time to look for one
+        String skullOwner = toSkullOwner(event.getPlayer().getUniqueId());
+
+        if (subscriptions.containsKey(skullOwner)) {
+            this.update(skullOwner, true);
+        }
+    }
+
+    @EventHandler
+    public void onPlayerQuit(@NotNull PlayerQuitEvent event) {
+        preferences.remove(event.getPlayer().getUniqueId());
     }
 
     /**
@@ -90,7 +233,376 @@ public class InlineHeadsService implements Service, Listener {
      */
     @NotNull
     public Component getHead(@NotNull String skullOwner) throws ExecutionException {
-        return headCache.get(skullOwner);
+        return getHead(skullOwner, HeadProfile.FULL);
+    }
+
+    /**
+     * Get a component representing the head of the given player, rendered with the given profile.
+     * <b>WARNING:</b> This method will block the current thread while it fetches the head from minotar.net if it isn't already cached, so it is recommended to call this method asynchronously.
+     *
+     * @param skullOwner The name of the player to get the head of.
+     * @param profile    The profile to render the head with.
+     * @return A component representing the head of the given player.
+     * @throws ExecutionException If the head could not be fetched from minotar.net.
+     */
+    @NotNull
+    public Component getHead(@NotNull String skullOwner, @NotNull HeadProfile profile) throws ExecutionException {
+        if (profile == HeadProfile.HIDDEN) return Component.empty();
+
+        Component head = headCache.get(new HeadKey(skullOwner, profile));
+        this.markUsed(skullOwner);
+
+        return head;
+    }
+
+    /**
+     * Get a component representing the head of the given player, rendered for the given viewer.
+     * <b>WARNING:</b> This method will block the current thread while it fetches the head from minotar.net if it isn't already cached, so it is recommended to call this method asynchronously.
+     *
+     * @param skullOwner The name of the player to get the head of.
+     * @param viewer     The audience the head will be shown to.
+     * @return A component representing the head of the given player.
+     * @throws ExecutionException If the head could not be fetched from minotar.net.
+     * @see #getProfile(Audience)
+     */
+    @NotNull
+    public Component getHead(@NotNull String skullOwner, @NotNull Audience viewer) throws ExecutionException {
+        return getHead(skullOwner, getProfile(viewer));
+    }
+
+    /**
+     * Get the profile heads should be rendered with for the given viewer.
+     * <p>
+     * Players get their preferred profile if they have one, otherwise the configured default. Players without the
+     * resource pack, and audiences that aren't players (such as the console), get {@link HeadProfile#TEXT} instead
+     * of a profile that needs the resource pack.
+     *
+     * @param viewer The audience the head will be shown to.
+     * @return The profile to render heads with.
+     */
+    @NotNull
+    public HeadProfile getProfile(@NotNull Audience viewer) {
+        if (!(viewer instanceof Player player)) return HeadProfile.TEXT;
+
+        HeadProfile profile = preferences.get(player.getUniqueId());
+        if (profile == null) profile = defaultProfile;
+
+        if (profile.requiresResourcePack() && !resourcePackService.hasResourcePack(player.getUniqueId())) {
+            return HeadProfile.TEXT;
+        }
+
+        return profile;
+    }
+
+    /**
+     * Set the profile heads should be rendered with for the given player.
+     * Preferences are forgotten when the player quits, so they must be set again every time the player joins.
+     *
+     * @param uuid    The UUID of the player.
+     * @param profile The preferred profile, or {@code null} to use the configured default.
+     */
+    public void setProfile(@NotNull UUID uuid, @Nullable HeadProfile profile) {
+        if (profile == null) {
+            preferences.remove(uuid);
+        } else {
+            preferences.put(uuid, profile);
+        }
+    }
+
+    /**
+     * Stop accepting new fetches and give the ones already queued or running until the timeout to finish, cancelling
+     * whatever is left after that.
+     *
+     * @param timeoutSeconds How long to wait for pending fetches, in seconds.
+     */
+    private void drainFetches(long timeoutSeconds) {
+        fetchExecutor.shutdown();
+
+        try {
+            if (!fetchExecutor.awaitTermination(timeoutSeconds, TimeUnit.SECONDS)) {
+                int cancelled = fetchExecutor.shutdownNow().size();
+                plugin.getLogger().warning("Head fetches did not finish within " + timeoutSeconds + " seconds, cancelled "
+                        + cancelled + " that had not started yet.");
+            }
+        } catch (InterruptedException e) {
+            fetchExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Save the most recently used skins to disk, to be restored by {@link #restoreSnapshot()} on the next start.
+     *
+     * @param size The maximum number of skins to save.
+     */
+    private void saveSnapshot(int size) {
+        final Map<String, int[]> skins = new LinkedHashMap<>();
+
+        lastUsed.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, AtomicLong> entry) -> entry.getValue().get()).reversed())
+                .forEachOrdered(entry -> {
+                    int[] pixels = skinCache.asMap().get(entry.getKey());
+                    if (pixels != null && skins.size() < size) skins.put(entry.getKey(), pixels);
+                });
+
+        try {
+            HeadSnapshot.write(plugin.getDataFolder().toPath().resolve(SNAPSHOT_FILE), skins);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Unable to save the head cache", e);
+        }
+    }
+
+    /**
+     * Load the skins saved by {@link #saveSnapshot(int)} back into the cache, without replacing any skin that has been
+     * fetched in the meantime.
+     */
+    private void restoreSnapshot() {
+        final Map<String, int[]> skins;
+
+        try {
+            skins = HeadSnapshot.read(plugin.getDataFolder().toPath().resolve(SNAPSHOT_FILE), settings.expiry());
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Unable to restore the head cache", e);
+            return;
+        }
+
+        // The snapshot is ordered from most to least recently used, so keep that order
+        long now = System.nanoTime();
+        int restored = 0;
+
+        for (Map.Entry<String, int[]> skin : skins.entrySet()) {
+            if (skinCache.asMap().putIfAbsent(skin.getKey(), skin.getValue()) == null) {
+                lastUsed.computeIfAbsent(skin.getKey(), key -> new AtomicLong()).set(now - restored++);
+            }
+        }
+
+        if (restored > 0) {
+            plugin.getLogger().info("Restored " + restored + " cached heads.");
+        }
+    }
+
+    /**
+     * Subscribe to the head of the given player. The listener is called once the head has been fetched, and again
+     * whenever it changes afterward (such as when the player changes their skin), but never with an unchanged head.
+     * <p>
+     * This allows displays that are updated often, such as scoreboards, boss bars, and tab lists, to keep their last
+     * rendered line and only resend it when the listener is called.
+     * <b>NOTE:</b> The listener is called from a fetcher thread, so it must switch to the right thread itself if needed.
+     *
+     * @param uuid     The UUID of the player to get the head of.
+     * @param listener The listener to call with the head of the given player.
+     * @return A subscription that can be used to stop receiving updates.
+     */
+    @NotNull
+    public HeadSubscription subscribe(@NotNull UUID uuid, @NotNull Consumer<Component> listener) {
+        return subscribe(uuid, HeadProfile.FULL, listener);
+    }
+
+    /**
+     * Subscribe to the head of the given player, rendered with the given profile.
+     *
+     * @param uuid     The UUID of the player to get the head of.
+     * @param profile  The profile to render the head with.
+     * @param listener The listener to call with the head of the given player.
+     * @return A subscription that can be used to stop receiving updates.
+     * @see #subscribe(UUID, Consumer)
+     */
+    @NotNull
+    public HeadSubscription subscribe(@NotNull UUID uuid, @NotNull HeadProfile profile, @NotNull Consumer<Component> listener) {
+        final String skullOwner = toSkullOwner(uuid);
+        final Subscriber subscriber = new Subscriber(profile, listener);
+
+        subscriptions.compute(skullOwner, (key, subscribers) -> {
+            if (subscribers == null) subscribers = new CopyOnWriteArrayList<>();
+
+            subscribers.add(subscriber);
+            return subscribers;
+        });
+        this.update(skullOwner, false);
+
+        return () -> subscriptions.computeIfPresent(skullOwner, (key, subscribers) -> {
+            subscribers.remove(subscriber);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+    /**
+     * Fetch the head of the given player again, notifying its subscribers if it changed.
+     *
+     * @param uuid The UUID of the player to refresh the head of.
+     */
+    public void refresh(@NotNull UUID uuid) {
+        this.update(toSkullOwner(uuid), true);
+    }
+
+    /**
+     * Fetch the skin of the given player in the background and pass it on to any subscriber that hasn't seen it yet.
+     *
+     * @param skullOwner The name or UUID of the player.
+     * @param refresh    Whether to fetch the skin again even if it is already cached.
+     */
+    private void update(@NotNull String skullOwner, boolean refresh) {
+        try {
+            fetchExecutor.execute(() -> {
+                final int[] pixels;
+
+                try {
+                    int[] previous = skinCache.asMap().get(skullOwner);
+
+                    if (refresh || previous == null) {
+                        pixels = skinLoader.load(skullOwner);
+                        skinCache.put(skullOwner, pixels);
+
+                        // Rendered heads can outlive their skin, so they may be stale even if no skin was cached
+                        if (!Arrays.equals(previous, pixels)) {
+                            for (HeadProfile profile : HeadProfile.values()) {
+                                headCache.invalidate(new HeadKey(skullOwner, profile));
+                            }
+                        }
+                    } else {
+                        pixels = previous;
+                    }
+                } catch (Exception e) {
+                    plugin.getLogger().log(Level.WARNING, "Unable to fetch the head of " + skullOwner, e);
+                    return;
+                }
+
+                List<Subscriber> subscribers = subscriptions.get(skullOwner);
+                if (subscribers == null) return;
+
+                for (Subscriber subscriber : subscribers) {
+                    subscriber.update(skullOwner, pixels);
+                }
+            });
+        } catch (RejectedExecutionException ignored) {
+            // Shutting down, subscribers are updated again on the next load
+        }
+    }
+
+    private void markUsed(@NotNull String skullOwner) {
+        // Reading through the map view keeps the skin from expiring while its heads are in use, without counting
+        // towards the cache stats
+        if (skinCache.asMap().get(skullOwner) == null) return;
+
+        AtomicLong used = lastUsed.get(skullOwner);
+        if (used == null) used = lastUsed.computeIfAbsent(skullOwner, key -> new AtomicLong());
+
+        used.set(System.nanoTime());
+    }
+
+    @NotNull
+    private static String toSkullOwner(@NotNull UUID uuid) {
+        return uuid.toString().replace("-", "");
+    }
+
+    /**
+     * Apply new settings, rebuilding the caches with the new expiry and size while carrying over everything already
+     * cached. This is called with the settings from the config every time the service is loaded.
+     * <p>
+     * Only entries that haven't expired are carried over, and their expiry starts over from when they were carried
+     * over. Skins fetched into the old cache while it is being replaced may be lost, and are simply fetched again.
+     *
+     * @param settings The settings to apply.
+     */
+    public synchronized void configure(@NotNull HeadSettings settings) {
+        LoadingCache<String, int[]> newSkinCache = newCacheBuilder(settings).removalListener(skinRemovalListener).build(skinLoader);
+        LoadingCache<HeadKey, Component> newHeadCache = newCacheBuilder(settings).build(headLoader);
+
+        // The map views skip expired entries
+        newSkinCache.putAll(skinCache.asMap());
+        newHeadCache.putAll(headCache.asMap());
+
+        this.settings = settings;
+        this.skinCache = newSkinCache;
+        this.headCache = newHeadCache;
+    }
+
+    /**
+     * Get the statistics of the skin cache, such as its hit rate and the number of fetches that failed.
+     * Statistics start over whenever the service is reloaded.
+     *
+     * @return The statistics of the skin cache.
+     */
+    @NotNull
+    public CacheStats getSkinCacheStats() {
+        return skinCache.stats();
+    }
+
+    /**
+     * Get the statistics of the rendered head cache.
+     * Statistics start over whenever the service is reloaded.
+     *
+     * @return The statistics of the rendered head cache.
+     */
+    @NotNull
+    public CacheStats getHeadCacheStats() {
+        return headCache.stats();
+    }
+
+    @NotNull
+    private HeadProfile readDefaultProfile() {
+        String name = plugin.getConfig().getString("heads.default-profile", HeadProfile.FULL.name());
+
+        try {
+            return HeadProfile.valueOf(String.valueOf(name).toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("Unknown heads.default-profile " + name + ", using FULL instead. Expected one of "
+                    + Arrays.toString(HeadProfile.values()) + ".");
+            return HeadProfile.FULL;
+        }
+    }
+
+    @NotNull
+    private static CacheBuilder<Object, Object> newCacheBuilder(@NotNull HeadSettings settings) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                .expireAfterAccess(settings.expiry())
+                .recordStats();
+
+        if (settings.maximumSize() > 0) {
+            builder.maximumSize(settings.maximumSize());
+        }
+
+        return builder;
+    }
+
+    private record HeadKey(@NotNull String skullOwner, @NotNull HeadProfile profile) { }
+
+    private final class Subscriber {
+
+        private final HeadProfile profile;
+        private final Consumer<Component> listener;
+
+        /**
+         * The skin last rendered for this subscriber and the head the listener was last called with, to skip updates
+         * that didn't change anything. Different skins can still render the same head, such as with
+         * {@link HeadProfile#TEXT} or {@link HeadProfile#HIDDEN}.
+         */
+        private int[] lastPixels;
+        private Component lastHead;
+
+        private Subscriber(@NotNull HeadProfile profile, @NotNull Consumer<Component> listener) {
+            this.profile = profile;
+            this.listener = listener;
+        }
+
+        private synchronized void update(@NotNull String skullOwner, int @NotNull [] pixels) {
+            if (Arrays.equals(lastPixels, pixels)) return;
+
+            try {
+                // Rendered from the skin passed in rather than the head cache, which may still hold an older render
+                Component head = profile.render(pixels);
+
+                if (!head.equals(lastHead)) {
+                    listener.accept(head);
+                    lastHead = head;
+                }
+
+                lastPixels = pixels;
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.WARNING, "Unable to update a subscriber to the head of " + skullOwner, e);
+            }
+        }
+
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,41 @@
+package com.berttowne.inlineheads.command;
+
+import com.berttowne.inlineheads.InlineHeadsPlugin;
+import com.mojang.brigadier.Command;
+import com.mojang.brigadier.tree.LiteralCommandNode;
+import io.papermc.paper.command.brigadier.CommandSourceStack;
+import io.papermc.paper.command.brigadier.Commands;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.jetbrains.annotations.NotNull;
+
+@SuppressWarnings("UnstableApiUsage")
+public final class InlineHeadsCommand {
+
+    private InlineHeadsCommand() {
+        throw new UnsupportedOperationException("This class cannot be instantiated");
+    }
+
+    /**
+     * Create the {@code /inlineheads} command.
+     *
+     * @param plugin The plugin to reload.
+     * @return The command node to register.
+     */
+    @NotNull
+    public static LiteralCommandNode<CommandSourceStack> create(@NotNull InlineHeadsPlugin plugin) {
+        return Commands.literal("inlineheads")
+                .requires(source -> source.getSender().hasPermission("inlineheads.reload"))
+                .then(Commands.literal("reload").executes(context -> {
+                    if (plugin.reload()) {
+                        context.getSource().getSender().sendMessage(Component.text("InlineHeads has been reloaded.", NamedTextColor.GREEN));
+                    } else {
+                        context.getSource().getSender().sendMessage(Component.text("InlineHeads was reloaded with errors, check the console for details.", NamedTextColor.RED));
+                    }
+
+                    return Command.SINGLE_SUCCESS;
+                }))
+                .build();
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.berttowne.inlineheads.config;
+
+import com.berttowne.inlineheads.InlineHeadsPlugin;
+import com.berttowne.inlineheads.injection.Service;
+import com.google.auto.service.AutoService;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.logging.Level;
+
+/**
+ * Reloads the plugin when {@code config.yml} changes, if {@code watch-config} is enabled.
+ */
+@Singleton
+@SuppressWarnings("unused")
+@AutoService(Service.class)
+public class ConfigWatcherService implements Service {
+
+    /**
+     * How long to wait after the last change before reloading, as editors often write a file several times in a row.
+     */
+    private static final long RELOAD_DELAY_TICKS = 20L;
+
+    private final InlineHeadsPlugin plugin;
+
+    private WatchService watchService;
+    private volatile ScheduledTask pendingReload;
+
+    @Inject
+    public ConfigWatcherService(InlineHeadsPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void onEnable() {
+        if (!plugin.getConfig().getBoolean("watch-config", false)) return;
+
+        try {
+            this.watchService = FileSystems.getDefault().newWatchService();
+            plugin.getDataFolder().toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Unable to watch config.yml for changes", e);
+            return;
+        }
+
+        Thread.ofPlatform().daemon().name("InlineHeads Config Watcher").start(() -> this.watch(watchService));
+    }
+
+    @Override
+    public void onDisable() {
+        if (pendingReload != null) {
+            pendingReload.cancel();
+            pendingReload = null;
+        }
+
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Unable to stop watching config.yml", e);
+            }
+
+            watchService = null;
+        }
+    }
+
+    private void watch(@NotNull WatchService watchService) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.context() instanceof Path path && path.getFileName().toString().equals("config.yml")) {
+                        changed = true;
+                    }
+                }
+
+                key.reset();
+
+                if (changed) {
+                    this.scheduleReload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+            // Stopped watching
+        }
+    }
+
+    private void scheduleReload() {
+        ScheduledTask previous = pendingReload;
+        if (previous != null) previous.cancel();
+
+        this.pendingReload = plugin.getServer().getGlobalRegionScheduler().runDelayed(plugin, task -> {
+            plugin.getLogger().info("config.yml changed, reloading...");
+
+            if (!plugin.reload()) {
+                plugin.getLogger().warning("InlineHeads was reloaded with errors, see above for details.");
+            }
+        }, RELOAD_DELAY_TICKS);
+    }
+
+}
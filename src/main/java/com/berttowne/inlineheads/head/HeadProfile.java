@@ -0,0 +1,50 @@
+package com.berttowne.inlineheads.head;
+
+import net.kyori.adventure.text.Component;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The ways a head can be shown to a viewer, from the full 8x8 head down to nothing at all.
+ */
+public enum HeadProfile {
+
+    /**
+     * The full 8x8 head. Requires the resource pack.
+     */
+    FULL,
+
+    /**
+     * A single square in the average color of the head, for viewers without the resource pack.
+     */
+    TEXT,
+
+    /**
+     * Nothing at all.
+     */
+    HIDDEN;
+
+    /**
+     * Render a head in this profile.
+     *
+     * @param pixels The colors of the head, {@code pixels[row * 8 + col]}.
+     * @return A component representing the head.
+     */
+    @NotNull
+    public Component render(int @NotNull [] pixels) {
+        return switch (this) {
+            case FULL -> HeadTemplate.render(pixels);
+            case TEXT -> Component.text("■", HeadTemplate.averageColor(pixels));
+            case HIDDEN -> Component.empty();
+        };
+    }
+
+    /**
+     * Whether this profile needs the resource pack to display correctly.
+     *
+     * @return {@code true} if the resource pack is required.
+     */
+    public boolean requiresResourcePack() {
+        return this == FULL;
+    }
+
+}
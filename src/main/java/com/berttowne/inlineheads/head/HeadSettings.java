@@ -0,0 +1,55 @@
+package com.berttowne.inlineheads.head;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.logging.Logger;
+
+/**
+ * Where skins are fetched from and how long they are cached.
+ *
+ * @param skinUrl     The URL of an 8x8 skin image, with {@code %s} in place of the player's name or UUID.
+ * @param expiry      How long a head stays cached after it was last used.
+ * @param maximumSize The maximum number of cached heads, or {@code 0} for no limit.
+ */
+public record HeadSettings(@NotNull String skinUrl, @NotNull Duration expiry, long maximumSize) {
+
+    /**
+     * The settings used until the config has been loaded.
+     */
+    public static final HeadSettings DEFAULT = new HeadSettings("https://minotar.net/avatar/%s/8.png", Duration.of(10, ChronoUnit.MINUTES), 0);
+
+    /**
+     * Read the settings from the plugin config, falling back to {@link #DEFAULT} for anything missing or invalid.
+     *
+     * @param config The plugin config.
+     * @param logger The logger to warn about invalid values with.
+     * @return The settings from the config.
+     */
+    @NotNull
+    public static HeadSettings fromConfig(@NotNull ConfigurationSection config, @NotNull Logger logger) {
+        String skinUrl = config.getString("skin-url", DEFAULT.skinUrl());
+        long expiry = config.getLong("cache.expire-after-access", DEFAULT.expiry().toMinutes());
+        long maximumSize = config.getLong("cache.maximum-size", DEFAULT.maximumSize());
+
+        if (skinUrl == null || skinUrl.isBlank() || !skinUrl.contains("%s")) {
+            logger.warning("skin-url must contain %s in place of the player's name, using " + DEFAULT.skinUrl() + " instead.");
+            skinUrl = DEFAULT.skinUrl();
+        }
+
+        if (expiry <= 0) {
+            logger.warning("cache.expire-after-access must be at least 1 minute, using " + DEFAULT.expiry().toMinutes() + " instead.");
+            expiry = DEFAULT.expiry().toMinutes();
+        }
+
+        if (maximumSize < 0) {
+            logger.warning("cache.maximum-size cannot be negative, using " + DEFAULT.maximumSize() + " (no limit) instead.");
+            maximumSize = DEFAULT.maximumSize();
+        }
+
+        return new HeadSettings(skinUrl, Duration.of(expiry, ChronoUnit.MINUTES), maximumSize);
+    }
+
+}
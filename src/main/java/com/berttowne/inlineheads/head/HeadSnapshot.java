@@ -0,0 +1,107 @@
+package com.berttowne.inlineheads.head;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Saves cached skins to disk and reads them back, so a restart doesn't have to fetch every head again.
+ * <p>
+ * The file is gzipped and holds a header (magic number, version, time saved, entry count) followed by, for each skin,
+ * the player's name or UUID and the 64 pixels as 3-byte RGB values. Skins are expected without an alpha channel
+ * ({@code 0x00rrggbb}), which is how they come back when read.
+ */
+public final class HeadSnapshot {
+
+    private static final int MAGIC = 0x494E4844; // "INHD"
+    private static final int VERSION = 1;
+
+    private HeadSnapshot() {
+        throw new UnsupportedOperationException("This class cannot be instantiated");
+    }
+
+    /**
+     * Write skins to the given file, replacing it atomically.
+     *
+     * @param file  The file to write to.
+     * @param skins The skins to write, by player name or UUID, in the order they should be restored.
+     * @throws IOException If the file could not be written.
+     */
+    public static void write(@NotNull Path file, @NotNull Map<String, int[]> skins) throws IOException {
+        final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+        Files.createDirectories(file.getParent());
+
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary))))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(skins.size());
+
+            for (Map.Entry<String, int[]> skin : skins.entrySet()) {
+                out.writeUTF(skin.getKey());
+
+                for (int pixel : skin.getValue()) {
+                    out.writeByte(pixel >> 16);
+                    out.writeByte(pixel >> 8);
+                    out.writeByte(pixel);
+                }
+            }
+        }
+
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read skins from the given file.
+     *
+     * @param file   The file to read from.
+     * @param maxAge How old the file may be before its skins are considered expired.
+     * @return The skins, by player name or UUID, in the order they were written. Empty if the file doesn't exist or
+     * has expired.
+     * @throws IOException If the file could not be read or isn't a snapshot.
+     */
+    @NotNull
+    public static Map<String, int[]> read(@NotNull Path file, @NotNull Duration maxAge) throws IOException {
+        final Map<String, int[]> skins = new LinkedHashMap<>();
+
+        if (!Files.exists(file)) return skins;
+
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IOException("Not a head snapshot: " + file);
+            }
+
+            long savedAt = in.readLong();
+            if (System.currentTimeMillis() - savedAt > maxAge.toMillis()) return skins;
+
+            int count = in.readInt();
+
+            for (int i = 0; i < count; i++) {
+                String skullOwner = in.readUTF();
+                int[] pixels = new int[HeadTemplate.PIXELS];
+
+                for (int j = 0; j < pixels.length; j++) {
+                    pixels[j] = in.readUnsignedByte() << 16 | in.readUnsignedByte() << 8 | in.readUnsignedByte();
+                }
+
+                skins.put(skullOwner, pixels);
+            }
+        }
+
+        return skins;
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.berttowne.inlineheads.head;
+
+/**
+ * A handle to a subscription to a player's head, returned by
+ * {@link com.berttowne.inlineheads.InlineHeadsService#subscribe(java.util.UUID, java.util.function.Consumer)}.
+ */
+@FunctionalInterface
+public interface HeadSubscription {
+
+    /**
+     * Stop receiving updates for the head. Calling this more than once has no effect.
+     */
+    void unsubscribe();
+
+}
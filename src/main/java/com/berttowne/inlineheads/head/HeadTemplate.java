@@ -0,0 +1,131 @@
+package com.berttowne.inlineheads.head;
+
+import net.kyori.adventure.key.Key;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TranslatableComponent;
+import net.kyori.adventure.text.format.Style;
+import net.kyori.adventure.text.format.TextColor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Precomputed, immutable building blocks for rendering a head out of the Pixelized and NegativeSpaceFont glyphs.
+ * <p>
+ * Every head is made of the same 64 pixel glyphs and the same spacers in the same order, only the pixel colors differ.
+ * The uncolored skeleton is therefore built once when this class is initialized, and rendering a head copies its
+ * children, swapping in one colored copy of each glyph (Adventure components are immutable, so the spacers are shared
+ * as-is).
+ */
+public final class HeadTemplate {
+
+    /**
+     * The width and height of a head, in pixels.
+     */
+    public static final int SIZE = 8;
+
+    /**
+     * The number of pixels in a head.
+     */
+    public static final int PIXELS = SIZE * SIZE;
+
+    private static final Style FONT_STYLE = Style.style().font(Key.key("pixelized", "pixelized")).build();
+
+    private static final TranslatableComponent[] PIXEL_PROTOTYPES = new TranslatableComponent[PIXELS];
+    private static final TranslatableComponent[] SPACERS = new TranslatableComponent[SIZE];
+    private static final TranslatableComponent ROW_RESET;
+
+    /**
+     * For each glyph (in render order), the index of the image pixel ({@code row * 8 + col}) that colors it.
+     */
+    private static final int[] PIXEL_SOURCE = new int[PIXELS];
+
+    /**
+     * For each glyph (in render order), its index in the children of the skeleton.
+     */
+    private static final int[] GLYPH_INDEX = new int[PIXELS];
+
+    private static final Component SKELETON;
+
+    static {
+        for (int i = 1; i <= SIZE; i++) {
+            SPACERS[i - 1] = Component.translatable("space.-" + i);
+        }
+
+        ROW_RESET = SPACERS[SIZE - 1];
+
+        for (int i = 1; i <= PIXELS; i++) {
+            int row = i == PIXELS ? 0 : (SIZE - 1) - (i / SIZE);
+            int col = i == PIXELS ? SIZE - 1 : (i - 1) % SIZE;
+
+            if (col == SIZE - 1 && i < PIXELS) row++;
+
+            PIXEL_PROTOTYPES[i - 1] = Component.translatable("pixel.eighth-" + i, FONT_STYLE);
+            PIXEL_SOURCE[i - 1] = row * SIZE + col;
+        }
+
+        final List<Component> children = new ArrayList<>();
+
+        for (int i = 1; i <= PIXELS; i++) {
+            GLYPH_INDEX[i - 1] = children.size();
+            children.add(PIXEL_PROTOTYPES[i - 1]);
+            children.add(SPACERS[i % SIZE]);
+
+            if (i % SIZE == 0 && i != PIXELS) {
+                children.add(ROW_RESET);
+            }
+        }
+
+        SKELETON = Component.text().append(children).build();
+    }
+
+    private HeadTemplate() {
+        throw new UnsupportedOperationException("This class cannot be instantiated");
+    }
+
+    /**
+     * Render a head from 64 RGB values in row-major order.
+     *
+     * @param pixels The colors of the head, {@code pixels[row * 8 + col]}.
+     * @return A component representing the head.
+     */
+    @NotNull
+    public static Component render(int @NotNull [] pixels) {
+        if (pixels.length != PIXELS) {
+            throw new IllegalArgumentException("Expected " + PIXELS + " pixels, got " + pixels.length);
+        }
+
+        final List<Component> children = new ArrayList<>(SKELETON.children());
+
+        for (int i = 0; i < PIXELS; i++) {
+            children.set(GLYPH_INDEX[i], PIXEL_PROTOTYPES[i].color(TextColor.color(pixels[PIXEL_SOURCE[i]])));
+        }
+
+        return SKELETON.children(children);
+    }
+
+    /**
+     * Get the average color of a head, for places where the head itself cannot be displayed.
+     *
+     * @param pixels The colors of the head, {@code pixels[row * 8 + col]}.
+     * @return The average color of the head.
+     */
+    @NotNull
+    public static TextColor averageColor(int @NotNull [] pixels) {
+        return TextColor.color(average(pixels));
+    }
+
+    private static int average(int @NotNull [] colors) {
+        int red = 0, green = 0, blue = 0;
+
+        for (int color : colors) {
+            red += (color >> 16) & 0xFF;
+            green += (color >> 8) & 0xFF;
+            blue += color & 0xFF;
+        }
+
+        return (red / colors.length) << 16 | (green / colors.length) << 8 | (blue / colors.length);
+    }
+
+}
@@ -5,6 +5,7 @@ import com.berttowne.inlineheads.injection.Service;
 import com.google.auto.service.AutoService;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
 import net.kyori.adventure.resource.ResourcePackInfo;
 import net.kyori.adventure.resource.ResourcePackRequest;
 import net.kyori.adventure.text.Component;
@@ -13,6 +14,8 @@ import net.kyori.adventure.text.format.TextDecoration;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerResourcePackStatusEvent;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
@@ -20,6 +23,11 @@ import java.net.URI;
 import java.net.URLConnection;
 import java.security.MessageDigest;
 import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 
 @Singleton
 @SuppressWarnings("unused")
@@ -29,8 +37,21 @@ public class ResourcePackService implements Service, Listener {
     private final InlineHeadsPlugin plugin;
     private final HexFormat hexFormat = HexFormat.of();
 
-    private boolean resourcePackEnabled = true;
-    private ResourcePackInfo resourcePackInfo;
+    private final Map<UUID, PlayerResourcePackStatusEvent.Status> statuses = new ConcurrentHashMap<>();
+
+    private volatile boolean resourcePackEnabled = true;
+    private volatile ResourcePackInfo resourcePackInfo;
+
+    /**
+     * Whether {@link #onLoad()} has run before, meaning it is now being called by a reload.
+     */
+    private boolean loaded = false;
+
+    /**
+     * Incremented on every load, so a hash generated for an older config is never applied.
+     */
+    private final AtomicInteger generation = new AtomicInteger();
+    private ScheduledTask hashTask;
 
     @Inject
     public ResourcePackService(InlineHeadsPlugin plugin) {
@@ -39,6 +60,17 @@ public class ResourcePackService implements Service, Listener {
 
     @Override
     public void onLoad() {
+        // When reloading, keep serving the current resource pack unless the new one is valid
+        boolean reloading = loaded;
+        int currentGeneration = generation.incrementAndGet();
+        this.loaded = true;
+
+        // A hash generated for the previous config is no longer wanted
+        if (hashTask != null) {
+            hashTask.cancel();
+            hashTask = null;
+        }
+
         // Load resource pack
         boolean enabled = plugin.getConfig().getBoolean("resource-pack.enabled", true);
         String rpUrl = plugin.getConfig().getString("resource-pack.url");
@@ -51,15 +83,36 @@ public class ResourcePackService implements Service, Listener {
             return;
         }
 
+        this.resourcePackEnabled = true;
+
         if (rpUrl == null) {
             plugin.getLogger().severe("** RESOURCE PACK URL NOT SET **");
-            plugin.getServer().getPluginManager().disablePlugin(plugin);
+            if (!reloading) plugin.getServer().getPluginManager().disablePlugin(plugin);
             return;
         }
 
         if (plugin.getConfig().getBoolean("resource-pack.generate-hash") || rpHash == null) {
             plugin.getLogger().info("Generating resource pack hash...");
 
+            if (reloading) {
+                this.hashTask = plugin.getServer().getAsyncScheduler().runNow(plugin, task -> {
+                    try {
+                        ResourcePackInfo info = this.createResourcePackInfo(rpUrl, this.getHashFromUrl(rpUrl));
+
+                        // Another reload may have started since, in which case its result wins
+                        synchronized (this) {
+                            if (generation.get() != currentGeneration) return;
+                            this.resourcePackInfo = info;
+                        }
+
+                        plugin.getLogger().info("Resource pack hash generated.");
+                    } catch (Exception e) {
+                        plugin.getLogger().log(Level.SEVERE, "** UNABLE TO GENERATE RESOURCE PACK HASH AUTOMATICALLY **", e);
+                    }
+                });
+                return;
+            }
+
             try {
                 rpHash = this.getHashFromUrl(rpUrl);
             } catch (Exception e) {
@@ -70,10 +123,11 @@ public class ResourcePackService implements Service, Listener {
             }
         }
 
-        this.resourcePackInfo = ResourcePackInfo.resourcePackInfo()
-                .uri(URI.create(rpUrl))
-                .hash(rpHash)
-                .build();
+        ResourcePackInfo info = this.createResourcePackInfo(rpUrl, rpHash);
+
+        synchronized (this) {
+            this.resourcePackInfo = info;
+        }
     }
 
     @EventHandler
@@ -91,6 +145,43 @@ public class ResourcePackService implements Service, Listener {
                 .build());
     }
 
+    @EventHandler
+    public void onResourcePackStatus(@NotNull PlayerResourcePackStatusEvent event) {
+        // When another plugin sends the pack we can't tell it apart from other packs, so every status counts
+        if (resourcePackInfo != null && !resourcePackInfo.id().equals(event.getID())) return;
+
+        statuses.put(event.getPlayer().getUniqueId(), event.getStatus());
+    }
+
+    @EventHandler
+    public void onPlayerQuit(@NotNull PlayerQuitEvent event) {
+        statuses.remove(event.getPlayer().getUniqueId());
+    }
+
+    /**
+     * Check whether the given player has (or is still getting) the resource pack.
+     * Players who haven't responded to the resource pack request yet are assumed to have it.
+     *
+     * @param uuid The UUID of the player.
+     * @return {@code false} if the player declined the resource pack or it failed to load.
+     */
+    public boolean hasResourcePack(@NotNull UUID uuid) {
+        PlayerResourcePackStatusEvent.Status status = statuses.get(uuid);
+
+        return status == null || switch (status) {
+            case ACCEPTED, DOWNLOADED, SUCCESSFULLY_LOADED -> true;
+            default -> false;
+        };
+    }
+
+    @NotNull
+    private ResourcePackInfo createResourcePackInfo(@NotNull String url, @NotNull String hash) {
+        return ResourcePackInfo.resourcePackInfo()
+                .uri(URI.create(url))
+                .hash(hash)
+                .build();
+    }
+
     public ResourcePackInfo getResourcePack() {
         return resourcePackInfo;
     }